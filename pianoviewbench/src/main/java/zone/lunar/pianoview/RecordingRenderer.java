@@ -0,0 +1,195 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link PianoRenderer} recording the primitive draw commands of a frame, optionally rasterized to a {@link BufferedImage}.
+ * Meant for headless benchmarks and golden image tests on the JVM, not for use on a device.
+ */
+public class RecordingRenderer implements PianoRenderer {
+
+    public static final int FILL_POLYGON = 0;
+    public static final int STROKE_POLYGON = 1;
+    public static final int FILL_RECT = 2;
+    public static final int STROKE_RECT = 3;
+    public static final int DRAW_TEXT = 4;
+
+    public static final class Command {
+        private final int op;
+        private final int color;
+        private final float[] coords; // polygon points already shifted by dx, {left, top, right, bottom} or {x, y, size}
+        private final String text;
+
+        Command(int op, int color, float[] coords, String text) {
+            this.op = op;
+            this.color = color;
+            this.coords = coords;
+            this.text = text;
+        }
+
+        public int getOp() {
+            return op;
+        }
+
+        public int getColor() {
+            return color;
+        }
+
+        public float[] getCoords() {
+            return coords.clone();
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        // op + color + coords, as they would be serialized into a display list
+        public int byteCount() {
+            return 4 + 4 + 4 * coords.length + (text != null ? 2 * text.length() : 0);
+        }
+    }
+
+    private final List<Command> commands = new ArrayList<>();
+
+    @Override
+    public void fillPolygon(float[] points, float dx, int color) {
+        commands.add(new Command(FILL_POLYGON, color, shift(points, dx), null));
+    }
+
+    @Override
+    public void strokePolygon(float[] points, float dx, int color) {
+        commands.add(new Command(STROKE_POLYGON, color, shift(points, dx), null));
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        commands.add(new Command(FILL_RECT, color, new float[] {left, top, right, bottom}, null));
+    }
+
+    @Override
+    public void strokeRect(float left, float top, float right, float bottom, int color) {
+        commands.add(new Command(STROKE_RECT, color, new float[] {left, top, right, bottom}, null));
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, float size, int color) {
+        commands.add(new Command(DRAW_TEXT, color, new float[] {x, y, size}, text));
+    }
+
+    public List<Command> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    public int getOpCount() {
+        return commands.size();
+    }
+
+    public int getPathCount() {
+        int count = 0;
+        for (Command c : commands)
+            if (c.op == FILL_POLYGON || c.op == STROKE_POLYGON)
+                ++count;
+        return count;
+    }
+
+    public int getByteCount() {
+        int count = 0;
+        for (Command c : commands)
+            count += c.byteCount();
+        return count;
+    }
+
+    public int countColor(int op, int color) {
+        int count = 0;
+        for (Command c : commands)
+            if (c.op == op && c.color == color)
+                ++count;
+        return count;
+    }
+
+    public void reset() {
+        commands.clear();
+    }
+
+    // antialiasing stays off, the antialiased Java2D output changes between JDK releases while the aliased one doesn't
+    public BufferedImage rasterize(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g.setStroke(new BasicStroke(1f));
+
+        for (Command c : commands) {
+            g.setColor(new Color(c.color, true));
+            switch (c.op) {
+                case FILL_POLYGON:
+                    g.fill(toPath(c.coords));
+                    break;
+                case STROKE_POLYGON:
+                    g.draw(toPath(c.coords));
+                    break;
+                case FILL_RECT:
+                    g.fill(toRect(c.coords));
+                    break;
+                case STROKE_RECT:
+                    g.draw(toRect(c.coords));
+                    break;
+                case DRAW_TEXT:
+                    g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 1).deriveFont(c.coords[2]));
+                    g.drawString(c.text, c.coords[0], c.coords[1]);
+                    break;
+            }
+        }
+
+        g.dispose();
+        return image;
+    }
+
+    private static float[] shift(float[] points, float dx) {
+        float[] shifted = new float[points.length];
+        for (int i = 0; i < points.length; i += 2) {
+            shifted[i] = points[i] + dx;
+            shifted[i + 1] = points[i + 1];
+        }
+        return shifted;
+    }
+
+    private static Shape toPath(float[] points) {
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(points[0], points[1]);
+        for (int i = 2; i < points.length; i += 2)
+            path.lineTo(points[i], points[i + 1]);
+        path.closePath();
+        return path;
+    }
+
+    private static Shape toRect(float[] rect) {
+        return new Rectangle2D.Float(rect[0], rect[1], rect[2] - rect[0], rect[3] - rect[1]);
+    }
+}
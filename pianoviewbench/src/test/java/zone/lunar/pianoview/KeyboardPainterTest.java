@@ -0,0 +1,150 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders frames headlessly through {@link RecordingRenderer}.
+ * Run with -PupdateGolden to re-record the golden images after an intended rendering change.
+ * The golden images are rasterized without antialiasing and match on JDK 8 (the JDK the build runs on) as well as JDK 17.
+ */
+public class KeyboardPainterTest {
+
+    private static final String GOLDEN_DIR = "src/test/resources/golden";
+
+    private static RecordingRenderer render(float position, float scale, int width, int height, Integer... pressed) {
+        RecordingRenderer renderer = new RecordingRenderer();
+        KeyboardGeometry g = KeyboardGeometry.create(position, scale, width, height);
+        new KeyboardPainter().draw(renderer, g, new HashSet<>(Arrays.asList(pressed)));
+        return renderer;
+    }
+
+    @Test
+    public void frameCost_middleC() throws Exception {
+        RecordingRenderer r = render(3500, 1f, 1000, 300); // B4 - E6, 11 white and 7 black keys
+        assertEquals(36, r.getOpCount());
+        assertEquals(22, r.getPathCount());
+        assertEquals(1696, r.getByteCount());
+    }
+
+    @Test
+    public void frameCost_scale() throws Exception {
+        assertEquals(18, render(3550, 2f, 800, 200).getOpCount());
+        assertEquals(56, render(0, 0.5f, 800, 200).getOpCount());
+    }
+
+    @Test
+    public void frameCost_independentOfPressedKeys() throws Exception {
+        RecordingRenderer idle = render(3500, 1f, 1000, 300);
+        RecordingRenderer pressed = render(3500, 1f, 1000, 300, 60, 61, 64);
+        assertEquals(idle.getOpCount(), pressed.getOpCount());
+        assertEquals(idle.getPathCount(), pressed.getPathCount());
+        assertEquals(idle.getByteCount(), pressed.getByteCount());
+    }
+
+    @Test
+    public void pressedKeys_useTouchColor() throws Exception {
+        KeyboardPainter painter = new KeyboardPainter();
+        RecordingRenderer r = render(3500, 1f, 1000, 300, 60, 61, 64, 20); // 20 is off screen
+        assertEquals(2, r.countColor(RecordingRenderer.FILL_POLYGON, painter.onTouchColor));
+        assertEquals(1, r.countColor(RecordingRenderer.FILL_RECT, painter.onTouchColor));
+    }
+
+    @Test
+    public void hooks_canDrawAnnotations() throws Exception {
+        KeyboardPainter labelling = new KeyboardPainter() {
+            @Override
+            protected void drawWhiteKeyL(PianoRenderer renderer, float x, boolean isTouching) { // C or F
+                super.drawWhiteKeyL(renderer, x, isTouching);
+                renderer.drawText("CF", x + 4, frame.getHeight() - 4, 12, strokeColor);
+            }
+
+            @Override
+            protected void drawBlackKey(PianoRenderer renderer, float x, boolean isTouching) {
+                super.drawBlackKey(renderer, x, isTouching);
+                renderer.strokeRect(x + 2, 2, x + frame.getBlackKeyWidth() - 2, frame.getBlackKeyHeight() - 2, strokeColor);
+            }
+        };
+
+        RecordingRenderer r = new RecordingRenderer();
+        labelling.draw(r, KeyboardGeometry.create(3500, 1f, 1000, 300), new HashSet<Integer>());
+        assertEquals(3, r.countColor(RecordingRenderer.DRAW_TEXT, labelling.strokeColor)); // C5, F5 and C6
+        assertEquals(36 + 3 + 7, r.getOpCount());
+    }
+
+    @Test
+    public void golden_middleC() throws Exception {
+        assertGolden("middle_c", render(3500, 1f, 800, 200).rasterize(800, 200));
+    }
+
+    @Test
+    public void golden_pressed() throws Exception {
+        assertGolden("pressed", render(3500, 1f, 800, 200, 60, 61, 64, 67, 70).rasterize(800, 200));
+    }
+
+    @Test
+    public void golden_zoomedIn() throws Exception {
+        assertGolden("zoomed_in", render(3550, 2f, 800, 200, 62, 63).rasterize(800, 200));
+    }
+
+    @Test
+    public void golden_zoomedOut() throws Exception {
+        assertGolden("zoomed_out", render(0, 0.5f, 800, 200, 0, 13).rasterize(800, 200));
+    }
+
+    private static void assertGolden(String name, BufferedImage actual) throws IOException {
+        if (Boolean.getBoolean("pianoview.updateGolden")) {
+            File file = new File(GOLDEN_DIR, name + ".png");
+            assertTrue("cannot create " + file.getParent(), file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            ImageIO.write(actual, "png", file);
+            return;
+        }
+
+        BufferedImage expected;
+        try (InputStream in = KeyboardPainterTest.class.getResourceAsStream("/golden/" + name + ".png")) {
+            assertNotNull("missing golden image " + name + ", run with -PupdateGolden", in);
+            expected = ImageIO.read(in);
+        }
+
+        assertEquals(name + " width", expected.getWidth(), actual.getWidth());
+        assertEquals(name + " height", expected.getHeight(), actual.getHeight());
+
+        // aliased Java2D output is the same across JDKs, so any difference is a rendering change
+        int mismatches = 0;
+        String first = null;
+        for (int y = 0; y < expected.getHeight(); ++y)
+            for (int x = 0; x < expected.getWidth(); ++x)
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    if (first == null)
+                        first = String.format("(%d, %d): expected %08x, got %08x", x, y, expected.getRGB(x, y), actual.getRGB(x, y));
+                    ++mismatches;
+                }
+
+        assertTrue(name + ": " + mismatches + " pixels differ, first at " + first, mismatches == 0);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+/**
+ * Picks the viewport position that keeps a range of sounding notes on screen.
+ * Positions and spans are in the same unit as {@link KeyboardGeometry#getPosition()}.
+ */
+public final class AutoFollow {
+
+    public static final float FOLLOW_TRIGGER = 0.25f * KeyboardGeometry.WHITE_KEY_WIDTH;    // start following once a note gets this close to an edge
+    public static final float FOLLOW_MARGIN = 2f * KeyboardGeometry.WHITE_KEY_WIDTH;        // ...then scroll until it is this far away from it
+
+    private AutoFollow() {
+    }
+
+    // new position for notes low..high, or current if they are still comfortably visible
+    public static float target(int low, int high, float current, float span) {
+        return targetForRange(KeyboardGeometry.midiNoteToPosition(low),
+                KeyboardGeometry.midiNoteToPosition(high) + KeyboardGeometry.keyWidth(high),
+                current, span);
+    }
+
+    // same as above for the positions from..to
+    public static float targetForRange(float from, float to, float current, float span) {
+        final float margin = Math.min(FOLLOW_MARGIN, span / 4);
+        final float trigger = Math.min(FOLLOW_TRIGGER, margin / 2);
+
+        // hysteresis: only pick a new target once the notes get close to an edge, then leave some room
+        if (from >= current + trigger && to <= current + span - trigger)
+            return current;
+
+        if (to - from + 2 * margin > span) { // doesn't fit, center it
+            final float center = KeyboardGeometry.clampPosition((from + to - span) / 2);
+            // some notes are off screen anyway, so only move once the center drifted by more than the margin
+            return Math.abs(center - current) <= margin ? current : center;
+        }
+
+        float target;
+        if (from < current + trigger)
+            target = from - margin;
+        else
+            target = to + margin - span;
+        return KeyboardGeometry.clampPosition(target);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+/**
+ * Immutable snapshot of the viewport and the key outlines derived from it.
+ * Safe to share between threads; the outline arrays must not be modified once created.
+ */
+public final class KeyboardGeometry {
+
+    //const
+    public static final float WHITE_KEY_WIDTH = 100f;
+    public static final float BLACK_KEY_WIDTH = 60f;
+    public static final float WB_H_RATIO_L = 0.66f;
+    public static final float WB_H_RATIO_M = 0.5f;
+    public static final float WB_H_RATIO_R = 1f - WB_H_RATIO_L;
+    public static final float WB_V_RATIO = 0.4f;
+    public static final float L_SHIFT_1 = WHITE_KEY_WIDTH - WB_H_RATIO_L * BLACK_KEY_WIDTH;   // C -> C# or F -> F#
+    public static final float L_SHIFT_2 = WHITE_KEY_WIDTH - L_SHIFT_1;                        // C# -> D or F# -> G
+    public static final float M_SHIFT_1 = WHITE_KEY_WIDTH - WB_H_RATIO_M * BLACK_KEY_WIDTH;   // G -> G#
+    public static final float M_SHIFT_2 = WHITE_KEY_WIDTH - M_SHIFT_1;                        // G# -> A
+    public static final float R_SHIFT_1 = WHITE_KEY_WIDTH - WB_H_RATIO_R * BLACK_KEY_WIDTH;   // D -> D# or A -> A#
+    public static final float R_SHIFT_2 = WHITE_KEY_WIDTH - R_SHIFT_1;                        // D# -> E or A# -> B
+    public static final float W_SHIFT = WHITE_KEY_WIDTH;                                      // E -> F or B -> C
+    public static final float MAX_POSITION = 75 * WHITE_KEY_WIDTH;                            // 75 white keys in 127 midi notes
+
+    // viewport
+    final float position;
+    final float scale;
+    final float width;
+    final float height;
+
+    // key outlines at x = 0, already scaled
+    final float[] whiteKeyLOutline; // C or F
+    final float[] whiteKeyROutline; // E or B
+    final float[] whiteKeyGOutline;
+    final float[] whiteKeyAOutline;
+    final float[] whiteKeyDOutline;
+    final float blackKeyWidth;
+    final float blackKeyHeight;
+
+    private KeyboardGeometry(float position, float scale, float width, float height,
+                             float[] whiteKeyLOutline, float[] whiteKeyROutline, float[] whiteKeyGOutline,
+                             float[] whiteKeyAOutline, float[] whiteKeyDOutline,
+                             float blackKeyWidth, float blackKeyHeight) {
+        this.position = position;
+        this.scale = scale;
+        this.width = width;
+        this.height = height;
+        this.whiteKeyLOutline = whiteKeyLOutline;
+        this.whiteKeyROutline = whiteKeyROutline;
+        this.whiteKeyGOutline = whiteKeyGOutline;
+        this.whiteKeyAOutline = whiteKeyAOutline;
+        this.whiteKeyDOutline = whiteKeyDOutline;
+        this.blackKeyWidth = blackKeyWidth;
+        this.blackKeyHeight = blackKeyHeight;
+    }
+
+    public static KeyboardGeometry create(float position, float scale, float width, float height) {
+        final float y = height * (1 - WB_V_RATIO);
+        final float ww = WHITE_KEY_WIDTH * scale;
+        final float bw = BLACK_KEY_WIDTH * scale;
+
+        final float[] whiteKeyLOutline = {
+                0, 0,
+                0, height,
+                ww, height,
+                ww, y,
+                ww - bw * WB_H_RATIO_L, y,
+                ww - bw * WB_H_RATIO_L, 0,
+        };
+
+        final float[] whiteKeyROutline = {
+                0, y,
+                0, height,
+                ww, height,
+                ww, 0,
+                bw * (1 - WB_H_RATIO_R), 0,
+                bw * (1 - WB_H_RATIO_R), y,
+        };
+
+        final float[] whiteKeyGOutline = {
+                0, y,
+                0, height,
+                ww, height,
+                ww, y,
+                ww - bw * WB_H_RATIO_M, y,
+                ww - bw * WB_H_RATIO_M, 0,
+                bw * (1 - WB_H_RATIO_L), 0,
+                bw * (1 - WB_H_RATIO_L), y,
+        };
+
+        final float[] whiteKeyAOutline = {
+                0, y,
+                0, height,
+                ww, height,
+                ww, y,
+                ww - bw * WB_H_RATIO_R, y,
+                ww - bw * WB_H_RATIO_R, 0,
+                bw * (1 - WB_H_RATIO_M), 0,
+                bw * (1 - WB_H_RATIO_M), y,
+        };
+
+        final float[] whiteKeyDOutline = {
+                0, y,
+                0, height,
+                ww, height,
+                ww, y,
+                ww - bw * WB_H_RATIO_R, y,
+                ww - bw * WB_H_RATIO_R, 0,
+                bw * (1 - WB_H_RATIO_L), 0,
+                bw * (1 - WB_H_RATIO_L), y,
+        };
+
+        return new KeyboardGeometry(position, scale, width, height,
+                whiteKeyLOutline, whiteKeyROutline, whiteKeyGOutline, whiteKeyAOutline, whiteKeyDOutline,
+                bw, y);
+    }
+
+    // shares the key outlines, which don't depend on position or width
+    public KeyboardGeometry withViewport(float position, float width) {
+        return new KeyboardGeometry(position, scale, width, height,
+                whiteKeyLOutline, whiteKeyROutline, whiteKeyGOutline, whiteKeyAOutline, whiteKeyDOutline,
+                blackKeyWidth, blackKeyHeight);
+    }
+
+    public float getPosition() {
+        return position;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    // outlines are shared between snapshots, don't modify the returned arrays
+
+    public float[] getWhiteKeyLOutline() { // C or F
+        return whiteKeyLOutline;
+    }
+
+    public float[] getWhiteKeyROutline() { // E or B
+        return whiteKeyROutline;
+    }
+
+    public float[] getWhiteKeyGOutline() {
+        return whiteKeyGOutline;
+    }
+
+    public float[] getWhiteKeyAOutline() {
+        return whiteKeyAOutline;
+    }
+
+    public float[] getWhiteKeyDOutline() {
+        return whiteKeyDOutline;
+    }
+
+    public float getBlackKeyWidth() {
+        return blackKeyWidth;
+    }
+
+    public float getBlackKeyHeight() {
+        return blackKeyHeight;
+    }
+
+    public static float clampPosition(float position) {
+        position = position < 0 ? 0 : position;
+        return position > MAX_POSITION ? MAX_POSITION : position;
+    }
+
+    // left edge of the key, in the same unit as position
+    public static float midiNoteToPosition(int midiNote) {
+        float pos = (midiNote / 12) * 7 * WHITE_KEY_WIDTH;
+        switch (midiNote % 12) {
+            //case 0: break;                                                // C
+            case 1: pos += L_SHIFT_1; break;                                // C#
+            case 2: pos += WHITE_KEY_WIDTH; break;                          // D
+            case 3: pos += WHITE_KEY_WIDTH + R_SHIFT_1; break;              // D#
+            case 4: pos += WHITE_KEY_WIDTH * 2; break;                      // E
+            case 5: pos += WHITE_KEY_WIDTH * 3; break;                      // F
+            case 6: pos += WHITE_KEY_WIDTH * 3 + L_SHIFT_1; break;          // F#
+            case 7: pos += WHITE_KEY_WIDTH * 4; break;                      // G
+            case 8: pos += WHITE_KEY_WIDTH * 4 + M_SHIFT_1; break;          // G#
+            case 9: pos += WHITE_KEY_WIDTH * 5; break;                      // A
+            case 10: pos += WHITE_KEY_WIDTH * 5 + R_SHIFT_1; break;         // A#
+            case 11: pos += WHITE_KEY_WIDTH * 6; break;                     // B
+        }
+        return pos;
+    }
+
+    public static float keyWidth(int midiNote) {
+        switch (midiNote % 12) {
+            case 1: case 3: case 6: case 8: case 10:
+                return BLACK_KEY_WIDTH;
+            default:
+                return WHITE_KEY_WIDTH;
+        }
+    }
+
+    public int pixelToMidiNote(float x, float y) {
+        float pos = x / scale + position;
+        int octave = (int) (pos / WHITE_KEY_WIDTH) / 7; // 7 white keys in total
+        float pos2 = pos - octave * WHITE_KEY_WIDTH * 7;
+
+        int key;
+
+        if (y > height * (1 - WB_V_RATIO)) { // lower half of the keyboard, must be white key
+            key = (int) (pos / WHITE_KEY_WIDTH) % 7;
+            switch (key) {
+                //case 0: key = 0; break;   // C
+                case 1: key = 2; break;     // D
+                case 2: key = 4; break;     // E
+                case 3: key = 5; break;     // F
+                case 4: key = 7; break;     // G
+                case 5: key = 9; break;     // A
+                case 6: key = 11; break;    // B
+            }
+        }
+        else { // upper half, need to check for black keys
+            if(pos2 >= WHITE_KEY_WIDTH * 3) { // F - B
+                if (pos2 < WHITE_KEY_WIDTH * 3 + L_SHIFT_1)
+                    key = 5; // F
+                else if (pos2 < WHITE_KEY_WIDTH * 3 + L_SHIFT_1 + BLACK_KEY_WIDTH)
+                    key = 6; // F#
+                else if (pos2 < WHITE_KEY_WIDTH * 3 + L_SHIFT_1 + L_SHIFT_2 + M_SHIFT_1)
+                    key = 7; // G
+                else if (pos2 < WHITE_KEY_WIDTH * 3 + L_SHIFT_1 + L_SHIFT_2 + M_SHIFT_1 + BLACK_KEY_WIDTH)
+                    key = 8; // G#
+                else if (pos2 < WHITE_KEY_WIDTH * 3 + L_SHIFT_1 + L_SHIFT_2 + M_SHIFT_1 + M_SHIFT_2 + R_SHIFT_1)
+                    key = 9; // A
+                else if (pos2 < WHITE_KEY_WIDTH * 3 + L_SHIFT_1 + L_SHIFT_2 + M_SHIFT_1 + M_SHIFT_2 + R_SHIFT_1 + BLACK_KEY_WIDTH)
+                    key = 10; // A#
+                else
+                    key = 11; // B
+
+            }
+            else { // C - E
+                if (pos2 < L_SHIFT_1)
+                    key = 0; // C
+                else if (pos2 < L_SHIFT_1 + BLACK_KEY_WIDTH)
+                    key = 1; // C#
+                else if (pos2 < L_SHIFT_1 + L_SHIFT_2 + R_SHIFT_1)
+                    key = 2; // D
+                else if (pos2 < L_SHIFT_1 + L_SHIFT_2 + R_SHIFT_1 + BLACK_KEY_WIDTH)
+                    key = 3; // D#
+                else
+                    key = 4; // E
+            }
+        }
+
+        return octave * 12 + key;
+    }
+}
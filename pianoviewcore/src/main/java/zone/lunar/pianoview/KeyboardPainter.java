@@ -0,0 +1,179 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+import java.util.Set;
+
+import static zone.lunar.pianoview.KeyboardGeometry.L_SHIFT_1;
+import static zone.lunar.pianoview.KeyboardGeometry.L_SHIFT_2;
+import static zone.lunar.pianoview.KeyboardGeometry.M_SHIFT_1;
+import static zone.lunar.pianoview.KeyboardGeometry.M_SHIFT_2;
+import static zone.lunar.pianoview.KeyboardGeometry.R_SHIFT_1;
+import static zone.lunar.pianoview.KeyboardGeometry.R_SHIFT_2;
+import static zone.lunar.pianoview.KeyboardGeometry.WHITE_KEY_WIDTH;
+import static zone.lunar.pianoview.KeyboardGeometry.W_SHIFT;
+
+/**
+ * Paints the keys of a {@link KeyboardGeometry} through a {@link PianoRenderer}.
+ * Override the drawWhiteKey and drawBlackKey hooks to draw additional info.
+ */
+public class KeyboardPainter {
+
+    public interface PressedKeys {
+        boolean isPressed(int midiNote);
+    }
+
+    //todo: styling
+    protected int strokeColor = 0xff454545;
+    protected int onTouchColor = 0xff8585b8;
+    protected int blackKeyColor = 0xff111111;
+    protected int whiteKeyColor = 0xffeeeeee;
+
+    protected KeyboardGeometry frame; // geometry being painted by the current draw()
+
+    public void draw(PianoRenderer renderer, KeyboardGeometry g, final Set<Integer> pressed) {
+        draw(renderer, g, new PressedKeys() {
+            @Override
+            public boolean isPressed(int midiNote) {
+                return pressed.contains(midiNote);
+            }
+        });
+    }
+
+    public void draw(PianoRenderer renderer, KeyboardGeometry g, PressedKeys pressed) {
+        frame = g;
+
+        final float scale = g.scale;
+        final float left = g.position;
+        final float right = g.position + g.width / scale;
+
+        //fun fact: you can unroll this loop to something similar to a Duff's device, not that i would do in Java...
+        float pos = left - (left % WHITE_KEY_WIDTH) - WHITE_KEY_WIDTH;
+        pos = pos < 0 ? 0 : pos;
+
+        int note = g.pixelToMidiNote((pos - left) * scale, g.height); //get the white note at start
+
+        while (pos < right) {
+            float x = (pos - left) * scale;
+            boolean isTouching = pressed.isPressed(note);
+            switch (note % 12) {
+                case 0: //C
+                    drawWhiteKeyL(renderer, x, isTouching);
+                    pos += L_SHIFT_1;
+                    ++note;
+                    break;
+
+                case 1: //C#
+                    drawBlackKey(renderer, x, isTouching);
+                    pos += L_SHIFT_2;
+                    ++note;
+                    break;
+
+                case 2: //D
+                    drawWhiteKeyD(renderer, x, isTouching);
+                    pos += R_SHIFT_1;
+                    ++note;
+                    break;
+
+                case 3: //D#
+                    drawBlackKey(renderer, x, isTouching);
+                    pos += R_SHIFT_2;
+                    ++note;
+                    break;
+
+                case 4: //E
+                    drawWhiteKeyR(renderer, x, isTouching);
+                    pos += W_SHIFT;
+                    ++note;
+                    break;
+
+                case 5: //F
+                    drawWhiteKeyL(renderer, x, isTouching);
+                    pos += L_SHIFT_1;
+                    ++note;
+                    break;
+
+                case 6: //F#
+                    drawBlackKey(renderer, x, isTouching);
+                    pos += L_SHIFT_2;
+                    ++note;
+                    break;
+
+                case 7: //G
+                    drawWhiteKeyG(renderer, x, isTouching);
+                    pos += M_SHIFT_1;
+                    ++note;
+                    break;
+
+                case 8: //G#
+                    drawBlackKey(renderer, x, isTouching);
+                    pos += M_SHIFT_2;
+                    ++note;
+                    break;
+
+                case 9: //A
+                    drawWhiteKeyA(renderer, x, isTouching);
+                    pos += R_SHIFT_1;
+                    ++note;
+                    break;
+
+                case 10: //A#
+                    drawBlackKey(renderer, x, isTouching);
+                    pos += R_SHIFT_2;
+                    ++note;
+                    break;
+
+                case 11: //B
+                    drawWhiteKeyR(renderer, x, isTouching);
+                    pos += W_SHIFT;
+                    ++note;
+                    break;
+            }
+        }
+    }
+
+    protected void drawWhiteKeyL(PianoRenderer renderer, float x, boolean isTouching) { // C or F
+        drawWhiteKey(renderer, frame.whiteKeyLOutline, x, isTouching);
+    }
+
+    protected void drawWhiteKeyR(PianoRenderer renderer, float x, boolean isTouching) { // E or B
+        drawWhiteKey(renderer, frame.whiteKeyROutline, x, isTouching);
+    }
+
+    protected void drawWhiteKeyG(PianoRenderer renderer, float x, boolean isTouching) {
+        drawWhiteKey(renderer, frame.whiteKeyGOutline, x, isTouching);
+    }
+
+    protected void drawWhiteKeyA(PianoRenderer renderer, float x, boolean isTouching) {
+        drawWhiteKey(renderer, frame.whiteKeyAOutline, x, isTouching);
+    }
+
+    protected void drawWhiteKeyD(PianoRenderer renderer, float x, boolean isTouching) {
+        drawWhiteKey(renderer, frame.whiteKeyDOutline, x, isTouching);
+    }
+
+    protected void drawBlackKey(PianoRenderer renderer, float x, boolean isTouching) {
+        final float r = x + frame.blackKeyWidth;
+        final float b = frame.blackKeyHeight;
+        renderer.fillRect(x, 0f, r, b, isTouching ? onTouchColor : blackKeyColor);
+        renderer.strokeRect(x, 0f, r, b, strokeColor);
+    }
+
+    private void drawWhiteKey(PianoRenderer renderer, float[] outline, float x, boolean isTouching) {
+        renderer.fillPolygon(outline, x, isTouching ? onTouchColor : whiteKeyColor);
+        renderer.strokePolygon(outline, x, strokeColor);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+/**
+ * Drawing primitives used by {@link KeyboardPainter}, colors are ARGB.
+ * Polygons are given as {x0, y0, x1, y1, ...}, implicitly closed and shifted horizontally by dx.
+ * Text is drawn left aligned with (x, y) on its baseline.
+ */
+public interface PianoRenderer {
+    void fillPolygon(float[] points, float dx, int color);
+    void strokePolygon(float[] points, float dx, int color);
+    void fillRect(float left, float top, float right, float bottom, int color);
+    void strokeRect(float left, float top, float right, float bottom, int color);
+    void drawText(String text, float x, float y, float size, int color);
+}
@@ -0,0 +1,86 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoFollowTest {
+
+    private static final float SPAN = 1000f; // margin 200, trigger 25
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void insideTriggerBand_keepsPosition() throws Exception {
+        // D5 - G5 span 3600 - 4100, well inside 3500 - 4500
+        assertEquals(3500f, AutoFollow.target(62, 67, 3500f, SPAN), DELTA);
+        // exactly on the trigger band
+        assertEquals(3500f, AutoFollow.targetForRange(3525f, 4475f, 3500f, SPAN), DELTA);
+    }
+
+    @Test
+    public void nearLeftEdge_scrollsLeftWithMargin() throws Exception {
+        // B4 starts at 3400, left of the view
+        assertEquals(3200f, AutoFollow.target(59, 59, 3500f, SPAN), DELTA);
+        // inside the view, but within the trigger band
+        assertEquals(3320f, AutoFollow.targetForRange(3520f, 3600f, 3500f, SPAN), DELTA);
+    }
+
+    @Test
+    public void nearRightEdge_scrollsRightWithMargin() throws Exception {
+        // D6 ends at 4400, right edge of the view is 4300
+        assertEquals(3600f, AutoFollow.target(74, 74, 3300f, SPAN), DELTA);
+    }
+
+    @Test
+    public void tooWide_centersNotes() throws Exception {
+        // C4 - C7 span 2800 - 5000
+        assertEquals(3400f, AutoFollow.target(48, 84, 2000f, SPAN), DELTA);
+    }
+
+    @Test
+    public void tooWide_movingTopNote_keepsPosition() throws Exception {
+        // C4 held in the bass, melody C6 - D6 - E6 - F6 - G6 - F6 on top
+        float current = AutoFollow.target(48, 72, 3500f, SPAN);
+        assertEquals(3050f, current, DELTA);
+        for (int top : new int[] {74, 76, 77, 79, 77}) {
+            current = AutoFollow.target(48, top, current, SPAN);
+            assertEquals("top note " + top, 3050f, current, DELTA);
+        }
+
+        // a jump beyond the margin recenters: C4 - C8 span 2800 - 5700
+        assertEquals(3750f, AutoFollow.target(48, 96, current, SPAN), DELTA);
+    }
+
+    @Test
+    public void clampsAtZero() throws Exception {
+        assertEquals(0f, AutoFollow.target(0, 0, 500f, SPAN), DELTA);
+    }
+
+    @Test
+    public void clampsAtMaxPosition() throws Exception {
+        final float max = KeyboardGeometry.MAX_POSITION;
+        assertEquals(max, AutoFollow.targetForRange(max + 500f, max + 5000f, 0f, SPAN), DELTA);
+        assertTrue(AutoFollow.target(127, 127, 0f, SPAN) <= max);
+    }
+
+    @Test
+    public void narrowView_scalesMarginDown() throws Exception {
+        // span 400: margin 100, trigger 25
+        assertEquals(3300f, AutoFollow.target(59, 59, 3500f, 400f), DELTA);
+    }
+}
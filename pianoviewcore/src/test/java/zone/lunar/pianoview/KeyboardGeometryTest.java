@@ -0,0 +1,46 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeyboardGeometryTest {
+
+    @Test
+    public void midiNoteToPosition_roundTrip() throws Exception {
+        final float height = 300f;
+        for (float scale : new float[] {0.5f, 1f, 2f}) {
+            KeyboardGeometry g = KeyboardGeometry.create(0f, scale, 1000f, height);
+            for (int note = 0; note <= 127; ++note) {
+                boolean isBlack = KeyboardGeometry.keyWidth(note) == KeyboardGeometry.BLACK_KEY_WIDTH;
+                float x = (KeyboardGeometry.midiNoteToPosition(note) + KeyboardGeometry.keyWidth(note) / 2) * scale;
+                float y = isBlack ? 1f : height - 1f; // black keys only exist in the upper part
+                assertEquals("note " + note + " at scale " + scale, note, g.pixelToMidiNote(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void withViewport_sharesOutlines() throws Exception {
+        KeyboardGeometry g = KeyboardGeometry.create(0f, 1f, 1000f, 300f);
+        KeyboardGeometry moved = g.withViewport(3500f, 800f);
+        assertEquals(3500f, moved.getPosition(), 0f);
+        assertEquals(800f, moved.getWidth(), 0f);
+        assertSame(g.getWhiteKeyLOutline(), moved.getWhiteKeyLOutline());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+Copyright 2017 Lunarflint
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package zone.lunar.pianoview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * {@link PianoRenderer} drawing to an {@link android.graphics.Canvas}, ui thread only.
+ */
+public class CanvasRenderer implements PianoRenderer {
+
+    private Canvas canvas;
+
+    private final Paint fillPaint;
+    private final Paint strokePaint;
+    private final Paint textPaint;
+
+    private final Path path;
+    private float[] pathPoints; // outline currently held by path, fill and stroke of the same key share it
+    private float pathDx;
+
+    public CanvasRenderer() {
+        fillPaint = new Paint();
+        fillPaint.setAntiAlias(true);
+        fillPaint.setStyle(Paint.Style.FILL);
+
+        strokePaint = new Paint();
+        strokePaint.setAntiAlias(true);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(1);
+
+        textPaint = new Paint();
+        textPaint.setAntiAlias(true);
+        textPaint.setStyle(Paint.Style.FILL);
+
+        path = new Path();
+    }
+
+    // the canvas of the current frame, for painters drawing beyond the PianoRenderer primitives
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    public void setCanvas(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    @Override
+    public void fillPolygon(float[] points, float dx, int color) {
+        fillPaint.setColor(color);
+        canvas.drawPath(toPath(points, dx), fillPaint);
+    }
+
+    @Override
+    public void strokePolygon(float[] points, float dx, int color) {
+        strokePaint.setColor(color);
+        canvas.drawPath(toPath(points, dx), strokePaint);
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        fillPaint.setColor(color);
+        canvas.drawRect(left, top, right, bottom, fillPaint);
+    }
+
+    @Override
+    public void strokeRect(float left, float top, float right, float bottom, int color) {
+        strokePaint.setColor(color);
+        canvas.drawRect(left, top, right, bottom, strokePaint);
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, float size, int color) {
+        textPaint.setColor(color);
+        textPaint.setTextSize(size);
+        canvas.drawText(text, x, y, textPaint);
+    }
+
+    private Path toPath(float[] points, float dx) {
+        if (points == pathPoints && dx == pathDx) // outlines are immutable, identity is enough
+            return path;
+
+        path.rewind();
+        path.moveTo(points[0] + dx, points[1]);
+        for (int i = 2; i < points.length; i += 2)
+            path.lineTo(points[i] + dx, points[i + 1]);
+        path.close();
+
+        pathPoints = points;
+        pathDx = dx;
+        return path;
+    }
+}